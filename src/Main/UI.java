@@ -1,18 +1,31 @@
 package Main;
 
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
+import javafx.geometry.Rectangle2D;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.Tooltip;
+import javafx.scene.effect.Blend;
+import javafx.scene.effect.BlendMode;
+import javafx.scene.effect.ColorInput;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
 import javafx.stage.Stage;
 
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 //This class is responsible for creating the entire UI
 //Additionally, because this class maintains an instance
 //of the gameCore class ('core') we can bind all of the
@@ -33,6 +46,13 @@ public class UI
     //instance and store it in this variable
     private gameCore core;
 
+    //If the game is being saved (see the gameStore class) every move
+    //has to go through the store instead of straight to the core so it
+    //ends up in the log. This stays null when nothing is being saved,
+    //and goes back to null if saving stops working (see stopSaving()).
+    private gameStore store;
+    private int session;
+
     //This is the UI component that will store the game board
     //I explain what each of the components are further below
     private GridPane gameBoard;
@@ -43,9 +63,35 @@ public class UI
     //the label using the 'new Label()' constructor call.
     private Label playerLabel = new Label();
 
-
-    //Here we are creating the image objects that our imageView
-    //will be able to display on the board. The static keyword
+    //When this box is ticked the computer plays as player 2 using
+    //a policy learned by self-play (see selfPlayTrainer). The policy
+    //is loaded in the background once the window is on screen (see
+    //afterFirstFrame()) so it doesn't slow down starting the game.
+    private CheckBox computerOpponent = new CheckBox("Computer Opponent");
+    private CompletableFuture<learnedPolicy> opponent;
+
+    //Set once the first frame has been drawn (see createUI())
+    private boolean firstFrameSeen;
+
+    //When this box is ticked every empty Tile is coloured by how good
+    //it would be to move there: green wins, yellow draws and red loses
+    //(see the moveHints class). The hints are worked out on their own
+    //background thread so the board never waits for them. Every time the
+    //board changes 'hintGeneration' goes up, and hints that finish after
+    //the board has changed again are thrown away.
+    private CheckBox showHints = new CheckBox("Show Hints");
+    private ExecutorService hintThread;
+    private int hintGeneration;
+
+
+    //Here we are creating the image object that our imageView
+    //will be able to display on the board. Instead of one picture
+    //per piece, all three pieces are packed side by side into a
+    //single picture (an 'atlas'): X, then O, then the empty square,
+    //each 160 pixels wide. Decoding one file is quicker than decoding
+    //three, which matters because this happens while the program is
+    //starting. Each Tile shows the whole atlas but uses a 'viewport'
+    //(the rectangles below) to only show the part it needs. The static keyword
     //means that for every instance of the UI class we create
     //there will only ever be 1 variable that every instance
     //shares. this might be a little redundant since we only
@@ -56,13 +102,13 @@ public class UI
     //a core part of the language. If we removed the static keyword
     //from each of these variables, nothing we would actually change
     //except that if we created another instance of the UI class
-    //it would get its own 'player1Image', 'player2Image', and
-    //'emptyImage' which would just be wasteful. Why would we need
-    //2 different copies of the same thing when we could just make
-    //both instances share!
-    static Image player1Image = new Image("Images/X.png");
-    static Image player2Image = new Image("Images/O.png");
-    static Image emptyImage = new Image("Images/empty.png");
+    //it would get its own 'pieceAtlas' and viewports which would
+    //just be wasteful. Why would we need 2 different copies of the
+    //same thing when we could just make both instances share!
+    static Image pieceAtlas = new Image("Images/pieces.png");
+    static Rectangle2D player1View = new Rectangle2D(0, 0, 160, 160);
+    static Rectangle2D player2View = new Rectangle2D(160, 0, 160, 160);
+    static Rectangle2D emptyView = new Rectangle2D(320, 0, 160, 160);
 
 
     //**************************************************************
@@ -115,8 +161,23 @@ public class UI
     //resetting itself.
     private void newGame()
     {
-        //reset gameCore
-        core.newGame();
+        //reset gameCore (through the store if we are saving games)
+        try
+        {
+            if(store != null)
+            {
+                store.newGame(session);
+            }
+            else
+            {
+                core.newGame();
+            }
+        }
+        catch(UncheckedIOException e)
+        {
+            stopSaving(e);
+            core.newGame();
+        }
 
         //Get all of the tiles in the game board and call each
         //Tile's 'clearTile()' method
@@ -133,9 +194,60 @@ public class UI
         //that gameCores current player is player 1 so we
         //can call setPlayerLabel()
         setPlayerLabel();
+        refreshHints();
 
     }
 
+    //Every move made on the board goes through here so we only have
+    //one place that knows about the store.
+    private void playMove(int x, int y)
+    {
+        try
+        {
+            if(store != null)
+            {
+                store.makeMove(session, x, y);
+            }
+            else
+            {
+                core.makeMove(x, y);
+            }
+        }
+        catch(UncheckedIOException e)
+        {
+            stopSaving(e);
+            core.makeMove(x, y);
+        }
+    }
+
+    //The store throws once it has failed to write (a full disk for
+    //example). It checks that before touching the gameCore, so the move
+    //hasn't happened yet and we can make it on the core ourselves. From
+    //then on the game is played without saving, just like when the store
+    //can't be opened at all.
+    private void stopSaving(UncheckedIOException e)
+    {
+        System.err.println("Could not save the game, continuing without saving: " + e.getCause());
+        store = null;
+    }
+
+    //This method makes every Tile show whatever piece the gameCore has
+    //at its position. A brand new game is already empty so this only
+    //matters when we start from a game that was saved earlier.
+    private void syncBoard()
+    {
+        for(int i=0; i<gameBoard.getChildren().size(); i++)
+        {
+            Tile tile = (Tile) gameBoard.getChildren().get(i);
+            tile.setPiece(core.getPiece(tile.xCoord, tile.yCoord));
+        }
+
+        setFreezeBoard(false);
+        setPlayerLabel();
+        checkGame();
+        refreshHints();
+    }
+
     //This method can be called to update the current player label
     //every time we make a move we call this/
     private void setPlayerLabel()
@@ -180,23 +292,257 @@ public class UI
     //listeners for each of the buttons.
     private HBox getBottomContainer(Stage window)
     {
-        //Since we have 2 buttons and we want them next to each other
+        //Since we have a few controls and we want them next to each other
         //HBox is an obvious choice (Horizontal Box).
         HBox mainContainer = new HBox(20);
         mainContainer.setAlignment(Pos.CENTER);
 
         Button closeButton = new Button("Close");
         Button clearBoard = new Button("New Game");
+        Button undoButton = new Button("Undo");
+        Button redoButton = new Button("Redo");
 
         closeButton.setOnAction(e -> window.close());
         clearBoard.setOnAction(e -> newGame());
+        undoButton.setOnAction(e -> undo());
+        redoButton.setOnAction(e -> redo());
+        computerOpponent.setOnAction(e -> computerMove());
+        showHints.setOnAction(e -> refreshHints());
 
-        mainContainer.getChildren().addAll(clearBoard,closeButton);
+        mainContainer.getChildren().addAll(undoButton,redoButton,clearBoard,closeButton,computerOpponent,showHints);
 
         return mainContainer;
     }
 
 
+    //If the computer is playing and it is player 2's turn, ask the
+    //learned policy for a move and click that Tile for it. Clicking
+    //the Tile means the computer's move goes through exactly the same
+    //code as a person's move.
+    private void computerMove()
+    {
+        if(!computerOpponent.isSelected() || core.getGameState() != 0 || core.getCurrentPlayer() != 2)
+        {
+            return;
+        }
+
+        //Usually the policy finished loading long ago, but on the very
+        //first run it may still be training. Waiting for it here would
+        //freeze the whole window, so instead we only freeze the board and
+        //make the move on the JavaFX thread once the policy is ready. By
+        //then anything could have happened (a new game, an undo, the box
+        //unticked) so everything is checked again before moving.
+        setFreezeBoard(true);
+        getOpponent().whenCompleteAsync((policy, error) ->
+        {
+            if(core.getGameState() == 0)
+            {
+                setFreezeBoard(false);
+            }
+
+            if(error != null)
+            {
+                //Forget the failed attempt so ticking the box again retries
+                System.err.println("Could not load the computer opponent: " + error);
+                opponent = null;
+                computerOpponent.setSelected(false);
+                return;
+            }
+
+            if(computerOpponent.isSelected() && core.getGameState() == 0 && core.getCurrentPlayer() == 2)
+            {
+                getTile(policy.chooseMove(core)).makeMove();
+            }
+        }, Platform::runLater);
+    }
+
+    //Finds the Tile for square number 'cell' (x*3 + y)
+    private Tile getTile(int cell)
+    {
+        for(int i=0; i<gameBoard.getChildren().size(); i++)
+        {
+            Tile tile = (Tile) gameBoard.getChildren().get(i);
+            if(tile.xCoord == cell / 3 && tile.yCoord == cell % 3)
+            {
+                return tile;
+            }
+        }
+
+        return null;
+    }
+
+    //Takes back the last move. The gameCore tells us which square
+    //changed so we only have to clear that one Tile. When playing the
+    //computer we take back its answer too, so it is the person's turn
+    //again instead of the computer immediately playing the same move.
+    private void undo()
+    {
+        int cell = undoOne();
+        if(cell < 0)
+        {
+            return;
+        }
+
+        if(computerOpponent.isSelected() && core.getCurrentPlayer() == 2)
+        {
+            undoOne();
+        }
+
+        //The game can't be over anymore, so unfreeze the board
+        setFreezeBoard(false);
+        setPlayerLabel();
+        refreshHints();
+    }
+
+    private int undoOne()
+    {
+        int cell;
+        try
+        {
+            cell = store != null ? store.undoMove(session) : core.undoMove();
+        }
+        catch(UncheckedIOException e)
+        {
+            stopSaving(e);
+            cell = core.undoMove();
+        }
+        if(cell >= 0)
+        {
+            getTile(cell).clearTile();
+        }
+
+        return cell;
+    }
+
+    //Plays the last undone move again. When playing the computer, if
+    //it is now its turn it either redoes its own old move or, if there
+    //is none, picks a move like it normally would.
+    private void redo()
+    {
+        if(redoOne() < 0)
+        {
+            return;
+        }
+
+        if(computerOpponent.isSelected() && core.getCurrentPlayer() == 2 && core.getGameState() == 0)
+        {
+            if(redoOne() < 0)
+            {
+                computerMove();
+            }
+        }
+    }
+
+    private int redoOne()
+    {
+        int cell;
+        try
+        {
+            cell = store != null ? store.redoMove(session) : core.redoMove();
+        }
+        catch(UncheckedIOException e)
+        {
+            stopSaving(e);
+            cell = core.redoMove();
+        }
+        if(cell >= 0)
+        {
+            getTile(cell).setPiece(core.getPiece(cell / 3, cell % 3));
+            setPlayerLabel();
+            checkGame();
+            refreshHints();
+        }
+
+        return cell;
+    }
+
+
+    //Asks for new hints for the board as it is right now. The background
+    //thread gets its own copy of the gameCore so it can try moves on it
+    //without getting in the way of the real game.
+    private void refreshHints()
+    {
+        hintGeneration++;
+
+        if(!showHints.isSelected())
+        {
+            for(int i=0; i<gameBoard.getChildren().size(); i++)
+            {
+                ((Tile) gameBoard.getChildren().get(i)).setHint(moveHints.OCCUPIED, 0);
+            }
+            return;
+        }
+
+        if(hintThread == null)
+        {
+            hintThread = Executors.newSingleThreadExecutor(r ->
+            {
+                Thread thread = new Thread(r, "move-hints");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        int generation = hintGeneration;
+        gameCore copy = new gameCore(core);
+        int pieces = 0;
+        for(int cell=0; cell<9; cell++)
+        {
+            if(core.getPiece(cell / 3, cell % 3) != gameCore.piece.EMPTY)
+            {
+                pieces++;
+            }
+        }
+
+        int piecesOnBoard = pieces;
+        hintThread.submit(() ->
+        {
+            int[] scores = moveHints.evaluate(copy);
+
+            //Only the JavaFX thread may change the Tiles
+            Platform.runLater(() ->
+            {
+                if(generation != hintGeneration || !showHints.isSelected())
+                {
+                    return;
+                }
+                for(int cell=0; cell<9; cell++)
+                {
+                    getTile(cell).setHint(scores[cell], piecesOnBoard);
+                }
+            });
+        });
+    }
+
+    //Starts loading (or training) the computer's policy on a background
+    //thread the first time this is called. The rotation table in
+    //boardIndex is built at the same time since the policy needs it.
+    private CompletableFuture<learnedPolicy> getOpponent()
+    {
+        if(opponent == null)
+        {
+            opponent = CompletableFuture.supplyAsync(() ->
+            {
+                boardIndex.canonical(0);
+                return learnedPolicy.loadOrTrain(learnedPolicy.defaultFile());
+            });
+        }
+
+        return opponent;
+    }
+
+    //Called once, right after the first frame of the window has been
+    //drawn. Anything that isn't needed to show the board goes here so
+    //the window appears as quickly as possible.
+    private void afterFirstFrame()
+    {
+        startupTimer.mark("first frame");
+        startupTimer.report();
+
+        getOpponent();
+    }
+
+
     //The purpose of this method is to update the UIs game state
     //after every move. First, we get the current state by asking
     //the gameCore instance using the 'getGameState()' method. this
@@ -270,12 +616,22 @@ public class UI
     //the Stage instance ('window') which we just pass to this
     //method to be populated
     public void createUI(Stage window, gameCore core)
+    {
+        createUI(window, core, null, 0);
+    }
+
+    //Same as above but every move is also saved in 'store' under the
+    //given session id. 'core' should be the session's gameCore from
+    //the store so the board starts where the saved game left off.
+    public void createUI(Stage window, gameCore core, gameStore store, int session)
     {
         //The first thing we do is set the gameCore variable 'core'
         //in this class and make it equal to the instance passed in
         //as a parameter to this method. This gives us a reference
         //to the game core for the rest of the class to use
         this.core = core;
+        this.store = store;
+        this.session = session;
 
         //Set the window size and title
         window.setTitle("TicTacToe");
@@ -314,6 +670,9 @@ public class UI
         //object's center section.
         mainLayout.setCenter(gameBoard);
 
+        //If we are continuing a saved game the Tiles need to show it
+        syncBoard();
+
         //Here 'getBottomContainer()' will create the container
         //that contains all the buttons. Since one of the buttons
         //is the close button we have to give the method a reference
@@ -342,9 +701,31 @@ public class UI
         //button to see what im talking about
         mainLayout.requestFocus();
 
+        //A 'pulse' is when JavaFX lays out and draws the scene. We listen for
+        //the first one and, once it has finished drawing (runLater runs after
+        //the current pulse), do the work we put off until after startup. The
+        //listener is removed from inside runLater because JavaFX is still
+        //looping over its listeners while it calls this one.
+        Runnable[] firstPulse = new Runnable[1];
+        firstPulse[0] = () ->
+        {
+            if(!firstFrameSeen)
+            {
+                firstFrameSeen = true;
+                Platform.runLater(() ->
+                {
+                    scene.removePostLayoutPulseListener(firstPulse[0]);
+                    afterFirstFrame();
+                });
+            }
+        };
+        scene.addPostLayoutPulseListener(firstPulse[0]);
+        startupTimer.mark("scene built");
+
         //Lastly, tell the window that you would actually like it to be displayed
         //to the user
         window.show();
+        startupTimer.mark("window shown");
     }
 
 
@@ -378,6 +759,9 @@ public class UI
         //the button from doing something.
         boolean disabled;
 
+        //The tooltip that explains this Tile's hint (see setHint())
+        Tooltip hint = new Tooltip();
+
         //This constructor takes two integers (x and y) that we can use to
         //set the coordinates right when we instantiate a new Tile object/
         public Tile(int x, int y)
@@ -397,12 +781,12 @@ public class UI
             //setImage() is a method that is implemented in the
             //imageView class that Tile extends from.
             //it takes an 'Image' object and handles
-            //actually changing the image displayed. You will notice
-            //that we give a relative path to the 'empty.png' image.
-            //this means that it knows where that picture is
-            //relative to where the current file is. In this case
-            //we want to set all new Tiles to empty so we set the empty.png
-            setImage(emptyImage);
+            //actually changing the image displayed. Every Tile shows
+            //the same atlas image and setViewport() picks which piece
+            //of it we see. In this case we want to set all new Tiles
+            //to empty so we use the empty square's viewport
+            setImage(pieceAtlas);
+            setViewport(emptyView);
 
             //setOnMouseClicked() is another method that comes from the imageView class
             //most components will have this method built in so you can trigger an event
@@ -430,30 +814,32 @@ public class UI
             }
 
             //If we get here we know the Tile that was clicked is empty and is
-            //not disabled so now we just need to actually make a move. To do this
-            //we have 2 different cases, if the Tile is Player 1, set the image to
-            //the X otherwise we know the Tile is Player 2 and we set the image to O.
-            //We know which player is currently moving because we have a reference to
-            //the gameCore instance 'core' which maintains who is the current player.
-            //Once we set the image to the right player we also have to update the Tiles
+            //not disabled so now we just need to actually make a move. First we
+            //remember who is moving, because the gameCore switches to the other
+            //player as soon as the move is made. Then we tell the gameCore to
+            //update it's state. since the makeMove() method inside the gameCore
+            //needs x and y coordinates we can pass it the coordinates of the Tile
+            //object that was clicked. The move is made before the Tile changes so
+            //that if anything goes wrong the Tile still matches the gameCore.
+            int player = core.getCurrentPlayer();
+            playMove(this.xCoord,this.yCoord);
+
+            //Now that the gameCore has the move we show it. We have 2 different
+            //cases, if the Tile is Player 1, set the image to the X otherwise we
+            //know the Tile is Player 2 and we set the image to O. Once we set the
+            //image to the right player we also have to update the Tiles
             //'currentPiece' variable to that new piece.
-            if(core.getCurrentPlayer() == 1)
+            if(player == 1)
             {
-                setImage(player1Image);
+                setViewport(player1View);
                 this.currentPiece = gameCore.piece.PLAYER1;
             }
             else
             {
-                setImage(player2Image);
+                setViewport(player2View);
                 this.currentPiece = gameCore.piece.PLAYER2;
             }
 
-            //Now that the image and piece has been set, we can tell the gameCore
-            //to update it's state. since the makeMove() method inside the gameCore
-            //needs x and y coordinates we can pass it the coordinates of the Tile
-            //object that was clicked.
-            core.makeMove(this.xCoord,this.yCoord);
-
             //This call will update label at the top of the screen indicating
             //who's turn it is.
             setPlayerLabel();
@@ -465,6 +851,10 @@ public class UI
             //Additionally, this method can disable all of the Tiles if the
             //game is over.
             checkGame();
+            refreshHints();
+
+            //If the computer is playing, now it's its turn
+            computerMove();
         }
 
 
@@ -474,7 +864,66 @@ public class UI
         void clearTile()
         {
             this.currentPiece = gameCore.piece.EMPTY;
-            setImage(emptyImage);
+            setViewport(emptyView);
+        }
+
+        //Colours the Tile for a hint score from moveHints and explains it
+        //in a tooltip. moveHints.OCCUPIED removes the hint. The colour is
+        //'multiplied' onto the picture, so white turns into the colour
+        //and the dark lines of the square stay dark.
+        void setHint(int score, int pieces)
+        {
+            if(score == moveHints.OCCUPIED)
+            {
+                setEffect(null);
+                Tooltip.uninstall(this, hint);
+                return;
+            }
+
+            Color color;
+            String text;
+            if(score > 0)
+            {
+                color = Color.rgb(140, 230, 140);
+                text = "Wins in " + moveHints.movesUntilEnd(score, pieces) + " moves";
+            }
+            else if(score < 0)
+            {
+                color = Color.rgb(240, 150, 150);
+                text = "Loses in " + moveHints.movesUntilEnd(score, pieces) + " moves";
+            }
+            else
+            {
+                color = Color.rgb(245, 230, 150);
+                text = "Draw with best play";
+            }
+
+            Blend tint = new Blend(BlendMode.MULTIPLY);
+            tint.setTopInput(new ColorInput(0, 0, 160, 160, color));
+            setEffect(tint);
+
+            hint.setText(text);
+            Tooltip.install(this, hint);
+        }
+
+        //Show any piece on this Tile, used when the board is
+        //redrawn from the gameCore instead of by clicking.
+        void setPiece(gameCore.piece piece)
+        {
+            this.currentPiece = piece;
+
+            if(piece == gameCore.piece.PLAYER1)
+            {
+                setViewport(player1View);
+            }
+            else if(piece == gameCore.piece.PLAYER2)
+            {
+                setViewport(player2View);
+            }
+            else
+            {
+                setViewport(emptyView);
+            }
         }
 
 
@@ -0,0 +1,34 @@
+package Main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+//Writes a whole file so that anybody reading it (including the program
+//itself after a crash) sees either the old file or the complete new one,
+//never something half written. The data goes to a temporary file next to
+//the real one first, is forced onto the disk, and then the temporary file
+//is renamed over the real one in a single step ('ATOMIC_MOVE').
+public class atomicFile
+{
+    //Replaces 'file' with everything left in 'data'
+    public static void write(Path file, ByteBuffer data) throws IOException
+    {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try(FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            while(data.hasRemaining())
+            {
+                out.write(data);
+            }
+            out.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,154 @@
+package Main;
+
+//This class turns a board into a single number so positions can be
+//used as an index into plain arrays (for example a table of learned
+//values). Each square is a digit in base 3 (0 = empty, 1 = p1, 2 = p2)
+//and square (x,y) is digit number x*3 + y, so every possible board
+//gets its own number between 0 and 3^9 - 1.
+//
+//Tic Tac Toe boards can also be rotated and mirrored without changing
+//the game at all, so there are 8 versions of (almost) every position.
+//canonical() picks the smallest number out of those 8 so all of them
+//share one slot in a table.
+public class boardIndex
+{
+    //3^9, the number of different boards (including impossible ones)
+    public static final int POSITIONS = 19683;
+
+    //POW3[i] is 3 to the power i, the value of digit i
+    static final int[] POW3 = {1, 3, 9, 27, 81, 243, 729, 2187, 6561};
+
+    //Each row moves every square somewhere else: SYMMETRIES[s][c] is where
+    //square c ends up under symmetry s. Squares are numbered x*3 + y.
+    static final int[][] SYMMETRIES = new int[8][9];
+
+    //The other way around: INVERSE[s][c] is the square that symmetry
+    //'s' moves onto square c
+    static final int[][] INVERSE = new int[8][9];
+
+    static
+    {
+        for(int x=0; x<3; x++)
+        {
+            for(int y=0; y<3; y++)
+            {
+                int c = x*3 + y;
+                SYMMETRIES[0][c] = x*3 + y;             //nothing
+                SYMMETRIES[1][c] = y*3 + (2-x);         //rotate 90
+                SYMMETRIES[2][c] = (2-x)*3 + (2-y);     //rotate 180
+                SYMMETRIES[3][c] = (2-y)*3 + x;         //rotate 270
+                SYMMETRIES[4][c] = (2-x)*3 + y;         //flip top to bottom
+                SYMMETRIES[5][c] = x*3 + (2-y);         //flip left to right
+                SYMMETRIES[6][c] = y*3 + x;             //flip on the diagonal
+                SYMMETRIES[7][c] = (2-y)*3 + (2-x);     //flip on the other diagonal
+            }
+        }
+
+        for(int s=0; s<8; s++)
+        {
+            for(int c=0; c<9; c++)
+            {
+                INVERSE[s][SYMMETRIES[s][c]] = c;
+            }
+        }
+    }
+
+    //The canonical table is only built the first time somebody asks for
+    //it. Java does not load the 'Table' class until it is used, which is
+    //an easy way to make something lazy without any extra checks.
+    private static class Table
+    {
+        static final int[] CANONICAL = new int[POSITIONS];
+
+        //Which symmetry turns each board into its canonical board
+        static final byte[] SYMMETRY = new byte[POSITIONS];
+
+        static
+        {
+            for(int index=0; index<POSITIONS; index++)
+            {
+                int best = index;
+                int bestSymmetry = 0;
+                for(int s=1; s<8; s++)
+                {
+                    int transformed = transform(index, s);
+                    if(transformed < best)
+                    {
+                        best = transformed;
+                        bestSymmetry = s;
+                    }
+                }
+                CANONICAL[index] = best;
+                SYMMETRY[index] = (byte) bestSymmetry;
+            }
+        }
+    }
+
+    //The number for whatever board the gameCore currently has
+    public static int of(gameCore core)
+    {
+        int index = 0;
+
+        for(int x=0; x<3; x++)
+        {
+            for(int y=0; y<3; y++)
+            {
+                gameCore.piece p = core.getPiece(x, y);
+                if(p == gameCore.piece.PLAYER1)
+                {
+                    index += POW3[x*3 + y];
+                }
+                else if(p == gameCore.piece.PLAYER2)
+                {
+                    index += 2 * POW3[x*3 + y];
+                }
+            }
+        }
+
+        return index;
+    }
+
+    //The digit (0, 1 or 2) stored for square 'cell'
+    public static int digit(int index, int cell)
+    {
+        return (index / POW3[cell]) % 3;
+    }
+
+    //The number for the board after 'player' (1 or 2) moves on 'cell'
+    public static int afterMove(int index, int cell, int player)
+    {
+        return index + player * POW3[cell];
+    }
+
+    public static int canonical(int index)
+    {
+        return Table.CANONICAL[index];
+    }
+
+    //Turns square 'canonicalCell' of the canonical board back into the
+    //matching square of board 'index'
+    public static int toBoard(int index, int canonicalCell)
+    {
+        return INVERSE[Table.SYMMETRY[index]][canonicalCell];
+    }
+
+    //Turns square 'cell' of board 'index' into the matching square
+    //of its canonical board
+    public static int toCanonical(int index, int cell)
+    {
+        return SYMMETRIES[Table.SYMMETRY[index]][cell];
+    }
+
+    //Move every square of the board the way symmetry 's' says to
+    public static int transform(int index, int s)
+    {
+        int result = 0;
+
+        for(int c=0; c<9; c++)
+        {
+            result += digit(index, c) * POW3[SYMMETRIES[s][c]];
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,37 @@
+package Main;
+
+import java.util.Random;
+
+//Wraps another strategy with an opening book: while the position is
+//in the book we play the book move straight away, and only once the
+//game has left the book do we ask the other strategy (usually a search)
+//to work out a move.
+public class bookStrategy implements strategy
+{
+    private final openingBook book;
+    private final strategy fallback;
+
+    public bookStrategy(openingBook book, strategy fallback)
+    {
+        this.book = book;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public String name()
+    {
+        return fallback.name() + "+book";
+    }
+
+    @Override
+    public int chooseMove(gameCore core, Random random)
+    {
+        int cell = book.lookup(core);
+        if(cell >= 0)
+        {
+            return cell;
+        }
+
+        return fallback.chooseMove(core, random);
+    }
+}
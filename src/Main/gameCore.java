@@ -81,6 +81,19 @@ public class gameCore
     //  Tie Game        = -1
     //  No Win          = 0
 
+    //To be able to take moves back we remember every move in order.
+    //A move is just the number of the square it was played on (x*3 + y)
+    //so a 'byte' is plenty, and a game can never have more than 9 moves.
+    //'ply' is how many of those moves are on the board right now and
+    //'historyTop' is how many there are in total: the moves between ply
+    //and historyTop were undone and can still be redone. We also remember
+    //the game state after every move so undo and redo can put it back
+    //straight away instead of checking the whole board again.
+    private byte[] moves = new byte[9];
+    private byte[] statesAfter = new byte[9];
+    private int ply = 0;
+    private int historyTop = 0;
+
 
 
     //These two methods (getCurrentPlayer() and getGameState())
@@ -101,6 +114,78 @@ public class gameCore
         return gameState;
     }
 
+    //Another getter, this time for a single square of the board.
+    //The UI uses this when it needs to redraw the Tiles from the
+    //core (for example after a saved game is recovered).
+    public piece getPiece(int x, int y)
+    {
+        return gameBoard[x][y];
+    }
+
+    //This method squeezes the whole board into a single int so it
+    //can be saved cheaply. Every square only has 3 possible values
+    //so 2 bits per square is enough (00 = empty, 01 = p1, 10 = p2)
+    //and 9 squares only need 18 of the 32 bits in an int. Square
+    //(x,y) is stored at bit position 2 * (x*3 + y).
+    public int packBoard()
+    {
+        int packed = 0;
+
+        for(int i=0; i<3; i++)
+        {
+            for(int j=0; j<3; j++)
+            {
+                int bits = 0;
+                if(gameBoard[i][j] == piece.PLAYER1)
+                {
+                    bits = 1;
+                }
+                else if(gameBoard[i][j] == piece.PLAYER2)
+                {
+                    bits = 2;
+                }
+
+                packed |= bits << (2 * (i*3 + j));
+            }
+        }
+
+        return packed;
+    }
+
+    //This is the opposite of packBoard(). It unpacks a board that was
+    //saved earlier and puts the core back into exactly that position
+    //with the given current player and game state.
+    public void restore(int packedBoard, int player, int state)
+    {
+        for(int i=0; i<3; i++)
+        {
+            for(int j=0; j<3; j++)
+            {
+                int bits = (packedBoard >>> (2 * (i*3 + j))) & 3;
+                if(bits == 1)
+                {
+                    gameBoard[i][j] = piece.PLAYER1;
+                }
+                else if(bits == 2)
+                {
+                    gameBoard[i][j] = piece.PLAYER2;
+                }
+                else
+                {
+                    gameBoard[i][j] = piece.EMPTY;
+                }
+            }
+        }
+
+        currentPlayer = player;
+        gameState = state;
+
+        //We don't know the order the pieces were played in,
+        //so there is nothing to undo
+        ply = 0;
+        historyTop = 0;
+    }
+
 
     //This is a special method called a constructor
     //it is the method that is called when we create
@@ -115,6 +200,28 @@ public class gameCore
         newGame();
     }
 
+    //This is called a 'copy constructor'. It creates a brand new
+    //gameCore that starts out exactly like 'other' but has its own
+    //board, so making moves on the copy doesn't change the original.
+    //Computer players use this to try out moves before picking one.
+    public gameCore(gameCore other)
+    {
+        for(int i=0; i<3; i++)
+        {
+            for(int j=0; j<3; j++)
+            {
+                gameBoard[i][j] = other.gameBoard[i][j];
+            }
+        }
+
+        currentPlayer = other.currentPlayer;
+        gameState = other.gameState;
+        moves = other.moves.clone();
+        statesAfter = other.statesAfter.clone();
+        ply = other.ply;
+        historyTop = other.historyTop;
+    }
+
 
     //This methods is pretty self explanatory
     //loop through the entire game board and
@@ -140,6 +247,8 @@ public class gameCore
         clearBoard();
         currentPlayer = 1;
         gameState = 0;
+        ply = 0;
+        historyTop = 0;
 
     }
 
@@ -165,6 +274,97 @@ public class gameCore
         }
 
         gameState = updateGameState();
+
+        //Remember the move. A new move means anything that was
+        //undone can't be redone anymore.
+        moves[ply] = (byte) (x*3 + y);
+        statesAfter[ply] = (byte) gameState;
+        ply++;
+        historyTop = ply;
+    }
+
+    public boolean canUndo()
+    {
+        return ply > 0;
+    }
+
+    public boolean canRedo()
+    {
+        return ply < historyTop;
+    }
+
+    //Takes back the last move. We know which square it was on, the
+    //player who made it is the one who isn't moving now, and the game
+    //state goes back to whatever it was after the move before (which
+    //is 'no win' because nobody can move after the game is over). So
+    //this never has to look at the rest of the board.
+    //Returns the square that was emptied (x*3 + y) or -1 if there
+    //was nothing to undo.
+    public int undoMove()
+    {
+        if(ply == 0)
+        {
+            return -1;
+        }
+
+        ply--;
+        int cell = moves[ply];
+        gameBoard[cell / 3][cell % 3] = piece.EMPTY;
+        currentPlayer = currentPlayer == 1 ? 2 : 1;
+        gameState = ply > 0 ? statesAfter[ply - 1] : 0;
+
+        return cell;
+    }
+
+    //Plays the last undone move again. Returns the square it was
+    //played on or -1 if there was nothing to redo.
+    public int redoMove()
+    {
+        if(ply == historyTop)
+        {
+            return -1;
+        }
+
+        int cell = moves[ply];
+        gameBoard[cell / 3][cell % 3] = currentPlayer == 1 ? piece.PLAYER1 : piece.PLAYER2;
+        currentPlayer = currentPlayer == 1 ? 2 : 1;
+        gameState = statesAfter[ply];
+        ply++;
+
+        return cell;
+    }
+
+    //Packs the whole move history into one long so it can be saved:
+    //4 bits per move for the 9 moves, then 4 bits for ply and 4 bits
+    //for historyTop. The board itself can be rebuilt from the moves.
+    public long packHistory()
+    {
+        long packed = 0;
+        for(int i=0; i<historyTop; i++)
+        {
+            packed |= (long) moves[i] << (4 * i);
+        }
+
+        return packed | (long) ply << 36 | (long) historyTop << 40;
+    }
+
+    //Rebuilds a game saved with packHistory() by replaying every move
+    //and then undoing the ones that had been undone.
+    public void restoreHistory(long packed)
+    {
+        newGame();
+
+        int savedPly = (int) (packed >>> 36) & 15;
+        int savedTop = (int) (packed >>> 40) & 15;
+        for(int i=0; i<savedTop; i++)
+        {
+            int cell = (int) (packed >>> (4 * i)) & 15;
+            makeMove(cell / 3, cell % 3);
+        }
+        while(ply > savedPly)
+        {
+            undoMove();
+        }
     }
 
     //This method will check to see
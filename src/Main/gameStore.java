@@ -0,0 +1,575 @@
+package Main;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+//This class is responsible for saving games so they survive
+//the program being closed (or crashing) in the middle of a match.
+//It keeps any number of 'sessions' (each one is just a gameCore
+//with an int id) and uses the same trick databases use:
+//
+//  1. Every move is appended to a 'write-ahead log' file. Instead of
+//     forcing each move onto the disk by itself (which is slow), moves
+//     are collected in memory and a background thread writes and forces
+//     a whole batch at once every few milliseconds ('group commit').
+//  2. Every so often we write a 'snapshot' of every session (its packed
+//     board and move history, see gameCore.packBoard() and packHistory())
+//     and throw away the old log, so the log never grows forever.
+//  3. When the program starts again we load the latest snapshot and
+//     replay whatever is left in the log through the gameCore.
+//
+//Logs are split into numbered 'generations' (moves-1.log, moves-2.log...)
+//so a snapshot can start a new log file without stopping the game while
+//the old one is being cleaned up.
+public class gameStore
+{
+    //Snapshot file layout: magic, first log generation NOT covered by
+    //the snapshot, number of sessions, then one fixed size record per
+    //session (id, packed board, current player, game state and packed
+    //move history). Sessions are rebuilt by replaying the history, which
+    //also brings back undo and redo. The board, player and state are there
+    //to check the replay against, so a bad record is caught instead of
+    //silently turning into a different game.
+    private static final int SNAPSHOT_MAGIC = 0x54545333;
+    private static final int SNAPSHOT_HEADER_SIZE = 12;
+    private static final int SNAPSHOT_RECORD_SIZE = 18;
+    private static final String SNAPSHOT_FILE = "snapshot.dat";
+
+    //Every log record is exactly 8 bytes: session id, operation,
+    //x, y and a check byte. The check byte lets us spot a record
+    //that was only half written when the program died.
+    private static final int RECORD_SIZE = 8;
+    private static final byte OP_MOVE = 1;
+    private static final byte OP_NEW_GAME = 2;
+    private static final byte OP_UNDO = 3;
+    private static final byte OP_REDO = 4;
+
+    //How often the background thread commits a batch of moves
+    //and how many moves we let pile up before taking a snapshot.
+    private static final long COMMIT_INTERVAL_MS = 10;
+    private static final int SNAPSHOT_EVERY = 100000;
+
+    private final Path directory;
+    private final HashMap<Integer, gameCore> sessions = new HashMap<>();
+
+    //'lock' protects the sessions and the pending batch. 'commitLock'
+    //makes sure only one thread at a time is writing to the log files.
+    //When both are needed commitLock is always taken first.
+    private final Object lock = new Object();
+    private final Object commitLock = new Object();
+
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer writing = ByteBuffer.allocate(64 * 1024);
+    private FileChannel log;
+    private long logGeneration;
+    private int recordsSinceSnapshot;
+
+    //Only one program at a time may use a directory, otherwise two
+    //of them would delete each other's logs.
+    private final FileChannel lockFile;
+    private final FileLock directoryLock;
+
+    private volatile boolean closed;
+    private volatile IOException failure;
+    private final Thread committer;
+
+    //close() wakes the committer up through this instead of interrupting
+    //it. Interrupting a thread in the middle of a FileChannel call closes
+    //the channel, which would take the log file down with it.
+    private final Object wakeup = new Object();
+
+
+    //Opening a store recovers every session saved in 'directory' and
+    //starts a new log generation for the moves made from now on. The
+    //store is usually opened before the first frame is drawn, so the
+    //slow part (writing a fresh snapshot and deleting the old logs) is
+    //left to the committer thread. Until it is done the old snapshot
+    //and logs are still there to recover from.
+    public gameStore(Path directory) throws IOException
+    {
+        this.directory = directory;
+        Files.createDirectories(directory);
+
+        lockFile = FileChannel.open(directory.resolve("store.lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        directoryLock = lockFile.tryLock();
+        if(directoryLock == null)
+        {
+            lockFile.close();
+            throw new IOException("Saved games are already in use: " + directory);
+        }
+
+        long firstLog = recover();
+        logGeneration = Math.max(firstLog, latestLogGeneration() + 1);
+        log = openLog(logGeneration);
+
+        committer = new Thread(this::commitLoop, "gameStore-committer");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    //Returns the gameCore for a session, creating a new game for ids
+    //we have never seen before. All moves on the returned core must
+    //go through this store so they end up in the log.
+    public gameCore getSession(int id)
+    {
+        synchronized(lock)
+        {
+            return sessions.computeIfAbsent(id, k -> new gameCore());
+        }
+    }
+
+    public int sessionCount()
+    {
+        synchronized(lock)
+        {
+            return sessions.size();
+        }
+    }
+
+    //Make a move in a session and add it to the log. The move becomes
+    //durable the next time the committer runs (or when sync() is called)
+    public void makeMove(int id, int x, int y)
+    {
+        synchronized(lock)
+        {
+            checkOpen();
+            getSession(id).makeMove(x, y);
+            append(id, OP_MOVE, x, y);
+        }
+    }
+
+    public void newGame(int id)
+    {
+        synchronized(lock)
+        {
+            checkOpen();
+            getSession(id).newGame();
+            append(id, OP_NEW_GAME, 0, 0);
+        }
+    }
+
+    //Undo and redo are logged too, otherwise replaying the log would
+    //bring back moves the player took back. Both return the square that
+    //changed, or -1 if there was nothing to undo or redo.
+    public int undoMove(int id)
+    {
+        synchronized(lock)
+        {
+            checkOpen();
+            int cell = getSession(id).undoMove();
+            if(cell >= 0)
+            {
+                append(id, OP_UNDO, 0, 0);
+            }
+            return cell;
+        }
+    }
+
+    public int redoMove(int id)
+    {
+        synchronized(lock)
+        {
+            checkOpen();
+            int cell = getSession(id).redoMove();
+            if(cell >= 0)
+            {
+                append(id, OP_REDO, 0, 0);
+            }
+            return cell;
+        }
+    }
+
+    //Forces everything made so far onto the disk right now
+    public void sync() throws IOException
+    {
+        commit();
+        if(failure != null)
+        {
+            throw failure;
+        }
+    }
+
+    //Commits what is left, writes a final snapshot and stops the
+    //background thread. Called by the UI when the window closes.
+    public void close() throws IOException
+    {
+        if(closed)
+        {
+            return;
+        }
+
+        closed = true;
+        synchronized(wakeup)
+        {
+            wakeup.notifyAll();
+        }
+        try
+        {
+            committer.join();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        snapshot();
+        synchronized(commitLock)
+        {
+            log.close();
+        }
+        directoryLock.release();
+        lockFile.close();
+
+        if(failure != null)
+        {
+            throw failure;
+        }
+    }
+
+
+    //Adds a single 8 byte record to the pending batch, growing the
+    //batch if a lot of moves arrive between two commits.
+    private void append(int id, byte op, int x, int y)
+    {
+        if(pending.remaining() < RECORD_SIZE)
+        {
+            ByteBuffer bigger = ByteBuffer.allocate(pending.capacity() * 2);
+            pending.flip();
+            bigger.put(pending);
+            pending = bigger;
+        }
+
+        pending.putInt(id);
+        pending.put(op);
+        pending.put((byte) x);
+        pending.put((byte) y);
+        pending.put(checkByte(id, op, x, y));
+        recordsSinceSnapshot++;
+    }
+
+    private static byte checkByte(int id, byte op, int x, int y)
+    {
+        return (byte) (0x5A ^ op ^ x ^ y ^ id ^ (id >>> 8) ^ (id >>> 16) ^ (id >>> 24));
+    }
+
+    private void commitLoop()
+    {
+        //First fold everything we recovered into a new snapshot
+        try
+        {
+            snapshot();
+        }
+        catch(IOException e)
+        {
+            failure = e;
+            return;
+        }
+
+        while(!closed)
+        {
+            try
+            {
+                synchronized(wakeup)
+                {
+                    if(!closed)
+                    {
+                        wakeup.wait(COMMIT_INTERVAL_MS);
+                    }
+                }
+            }
+            catch(InterruptedException e)
+            {
+                return;
+            }
+
+            try
+            {
+                commit();
+
+                boolean snapshotDue;
+                synchronized(lock)
+                {
+                    snapshotDue = recordsSinceSnapshot >= SNAPSHOT_EVERY;
+                }
+                if(snapshotDue)
+                {
+                    snapshot();
+                }
+            }
+            catch(IOException e)
+            {
+                failure = e;
+                return;
+            }
+        }
+    }
+
+    //Swap the pending batch out while holding the lock (so moves can
+    //keep coming in) and then write and force the whole batch with a
+    //single call. This is the 'group commit' that saves us from forcing
+    //the disk once per move.
+    private void commit() throws IOException
+    {
+        synchronized(commitLock)
+        {
+            synchronized(lock)
+            {
+                if(pending.position() == 0)
+                {
+                    return;
+                }
+
+                ByteBuffer batch = pending;
+                pending = writing;
+                writing = batch;
+            }
+
+            writeBatch(log, writing);
+        }
+    }
+
+    private static void writeBatch(FileChannel channel, ByteBuffer batch) throws IOException
+    {
+        batch.flip();
+        while(batch.hasRemaining())
+        {
+            channel.write(batch);
+        }
+        channel.force(false);
+        batch.clear();
+    }
+
+    //Copy the state of every session and switch to a new log file while
+    //holding the lock, then do all of the slow disk work without it.
+    //The snapshot is written with atomicFile so a crash half way through
+    //never leaves a broken snapshot behind.
+    private void snapshot() throws IOException
+    {
+        synchronized(commitLock)
+        {
+            FileChannel oldLog;
+            int count;
+            int[] ids;
+            int[] boards;
+            byte[] players;
+            byte[] states;
+            long[] histories;
+            long coveredUpTo;
+
+            synchronized(lock)
+            {
+                count = sessions.size();
+                ids = new int[count];
+                boards = new int[count];
+                players = new byte[count];
+                states = new byte[count];
+                histories = new long[count];
+
+                int i = 0;
+                for(Map.Entry<Integer, gameCore> entry : sessions.entrySet())
+                {
+                    gameCore core = entry.getValue();
+                    ids[i] = entry.getKey();
+                    boards[i] = core.packBoard();
+                    players[i] = (byte) core.getCurrentPlayer();
+                    states[i] = (byte) core.getGameState();
+                    histories[i] = core.packHistory();
+                    i++;
+                }
+
+                ByteBuffer batch = pending;
+                pending = writing;
+                writing = batch;
+
+                oldLog = log;
+                logGeneration++;
+                log = openLog(logGeneration);
+                coveredUpTo = logGeneration;
+                recordsSinceSnapshot = 0;
+            }
+
+            //The records that were still pending belong to the old log.
+            //The snapshot already includes them but writing them out
+            //keeps the old log complete until the snapshot is in place.
+            writeBatch(oldLog, writing);
+            oldLog.close();
+
+            ByteBuffer buffer = ByteBuffer.allocate(SNAPSHOT_HEADER_SIZE + count * SNAPSHOT_RECORD_SIZE);
+            buffer.putInt(SNAPSHOT_MAGIC);
+            buffer.putInt((int) coveredUpTo);
+            buffer.putInt(count);
+            for(int i=0; i<count; i++)
+            {
+                buffer.putInt(ids[i]);
+                buffer.putInt(boards[i]);
+                buffer.put(players[i]);
+                buffer.put(states[i]);
+                buffer.putLong(histories[i]);
+            }
+            buffer.flip();
+
+            atomicFile.write(directory.resolve(SNAPSHOT_FILE), buffer);
+
+            //Now that the snapshot is safe every older log can go
+            for(long generation : logGenerations())
+            {
+                if(generation < coveredUpTo)
+                {
+                    Files.deleteIfExists(logPath(generation));
+                }
+            }
+        }
+    }
+
+    //Load the snapshot (if there is one) and replay every log that is
+    //newer than it. Returns the first log generation the snapshot does
+    //not cover.
+    private long recover() throws IOException
+    {
+        long firstLog = 0;
+
+        Path snapshotPath = directory.resolve(SNAPSHOT_FILE);
+        if(Files.exists(snapshotPath))
+        {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(snapshotPath));
+            int magic = buffer.remaining() < SNAPSHOT_HEADER_SIZE ? 0 : buffer.getInt();
+            if(magic != SNAPSHOT_MAGIC)
+            {
+                throw new IOException("Not a snapshot file: " + snapshotPath);
+            }
+
+            firstLog = buffer.getInt();
+            int count = buffer.getInt();
+            for(int i=0; i<count; i++)
+            {
+                int id = buffer.getInt();
+                int board = buffer.getInt();
+                int player = buffer.get();
+                int state = buffer.get();
+
+                gameCore core = new gameCore();
+                core.restoreHistory(buffer.getLong());
+                if(core.packBoard() != board || core.getCurrentPlayer() != player
+                        || core.getGameState() != state)
+                {
+                    throw new IOException("Snapshot record for session " + id
+                            + " does not match its move history: " + snapshotPath);
+                }
+
+                sessions.put(id, core);
+            }
+        }
+
+        for(long generation : logGenerations())
+        {
+            if(generation >= firstLog)
+            {
+                replay(ByteBuffer.wrap(Files.readAllBytes(logPath(generation))));
+            }
+        }
+
+        return firstLog;
+    }
+
+    //Run every complete record through the gameCore. If the program died
+    //while writing, the last record may be cut off or garbage, so we stop
+    //at the first record whose check byte does not match.
+    private void replay(ByteBuffer buffer)
+    {
+        while(buffer.remaining() >= RECORD_SIZE)
+        {
+            int id = buffer.getInt();
+            byte op = buffer.get();
+            int x = buffer.get();
+            int y = buffer.get();
+            byte check = buffer.get();
+
+            if(check != checkByte(id, op, x, y))
+            {
+                return;
+            }
+
+            gameCore core = sessions.computeIfAbsent(id, k -> new gameCore());
+            if(op == OP_MOVE)
+            {
+                core.makeMove(x, y);
+            }
+            else if(op == OP_NEW_GAME)
+            {
+                core.newGame();
+            }
+            else if(op == OP_UNDO)
+            {
+                core.undoMove();
+            }
+            else if(op == OP_REDO)
+            {
+                core.redoMove();
+            }
+        }
+    }
+
+    private void checkOpen()
+    {
+        if(closed)
+        {
+            throw new IllegalStateException("gameStore is closed");
+        }
+        if(failure != null)
+        {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    private FileChannel openLog(long generation) throws IOException
+    {
+        return FileChannel.open(logPath(generation), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private Path logPath(long generation)
+    {
+        return directory.resolve("moves-" + generation + ".log");
+    }
+
+    private long latestLogGeneration() throws IOException
+    {
+        ArrayList<Long> generations = logGenerations();
+        return generations.isEmpty() ? 0 : generations.get(generations.size() - 1);
+    }
+
+    //Every log generation in the directory, oldest first
+    private ArrayList<Long> logGenerations() throws IOException
+    {
+        ArrayList<Long> generations = new ArrayList<>();
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, "moves-*.log"))
+        {
+            for(Path file : files)
+            {
+                String name = file.getFileName().toString();
+                try
+                {
+                    generations.add(Long.parseLong(name.substring(6, name.length() - 4)));
+                }
+                catch(NumberFormatException e)
+                {
+                    //Not one of ours, leave it alone
+                }
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+}
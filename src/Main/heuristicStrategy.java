@@ -0,0 +1,86 @@
+package Main;
+
+import java.util.Random;
+
+//Plays the way most people learn to play:
+//  1. If you can win right now, do it
+//  2. If the other player could win on their next move, block them
+//  3. Otherwise take the center, then a corner, then anything left
+public class heuristicStrategy implements strategy
+{
+    private static final int[] PREFERENCE = {4, 0, 2, 6, 8, 1, 3, 5, 7};
+
+    @Override
+    public String name()
+    {
+        return "heuristic";
+    }
+
+    @Override
+    public int chooseMove(gameCore core, Random random)
+    {
+        int player = core.getCurrentPlayer();
+
+        int win = findWinningMove(core, player);
+        if(win >= 0)
+        {
+            return win;
+        }
+
+        int block = findWinningMove(core, 3 - player);
+        if(block >= 0)
+        {
+            return block;
+        }
+
+        //Pick randomly between squares that are equally good so
+        //the heuristic doesn't play the exact same game every time
+        int corner = -1;
+        int corners = 0;
+        for(int cell : PREFERENCE)
+        {
+            if(core.getPiece(cell / 3, cell % 3) != gameCore.piece.EMPTY)
+            {
+                continue;
+            }
+            if(cell == 4)
+            {
+                return cell;
+            }
+            if(cell % 2 == 0 && random.nextInt(++corners) == 0)
+            {
+                corner = cell;
+            }
+        }
+        if(corner >= 0)
+        {
+            return corner;
+        }
+
+        return new randomStrategy().chooseMove(core, random);
+    }
+
+    //Returns a square where 'player' would win immediately, or -1.
+    //We pretend it is that player's turn by trying the move on a
+    //copy of the board where they are the current player.
+    private static int findWinningMove(gameCore core, int player)
+    {
+        for(int cell=0; cell<9; cell++)
+        {
+            if(core.getPiece(cell / 3, cell % 3) != gameCore.piece.EMPTY)
+            {
+                continue;
+            }
+
+            gameCore copy = new gameCore();
+            copy.restore(core.packBoard(), player, 0);
+            copy.makeMove(cell / 3, cell % 3);
+            if(copy.getGameState() == player)
+            {
+                return cell;
+            }
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,184 @@
+package Main;
+
+//The game logic for Tic Tac Toe on a board with no edges: players can
+//move on any (x,y) at all, including negative numbers, and the first
+//player to get 'winLength' pieces in a row wins. It works just like
+//gameCore (same player numbers and game state codes) but a board with
+//no size can't be a 2D array, so only the squares that have a piece on
+//them are stored, in a longPieceMap keyed by the packed (x,y).
+//
+//A few things are different from gameCore because of that:
+//  - The board can never be full, so there is no tie game (-1)
+//  - Only the new move can have made a row, so checking for a win just
+//    looks along the 4 lines through that square instead of the board
+//  - Memory grows with the number of moves, not with how far apart
+//    the pieces are
+public class infiniteGameCore
+{
+    private final int winLength;
+
+    private final longPieceMap board = new longPieceMap(1024);
+
+    private int currentPlayer = 1;
+    private int gameState = 0;
+
+    //Every move in order (packed the same way as the board keys) so
+    //moves can be undone. The array doubles when it fills up.
+    private long[] moves = new long[64];
+    private int moveCount = 0;
+
+    //The 4 directions a line can go: across, down and both diagonals
+    private static final int[][] DIRECTIONS = {{1, 0}, {0, 1}, {1, 1}, {1, -1}};
+
+    //A row shorter than 3 would let the first or second move win
+    //straight away, so that isn't a real game
+    public infiniteGameCore(int winLength)
+    {
+        if(winLength < 3)
+        {
+            throw new IllegalArgumentException("winLength must be at least 3, not " + winLength);
+        }
+        this.winLength = winLength;
+    }
+
+    public int getCurrentPlayer()
+    {
+        return currentPlayer;
+    }
+
+    public int getGameState()
+    {
+        return gameState;
+    }
+
+    public int getWinLength()
+    {
+        return winLength;
+    }
+
+    public int getMoveCount()
+    {
+        return moveCount;
+    }
+
+    public gameCore.piece getPiece(int x, int y)
+    {
+        byte value = board.get(key(x, y));
+        if(value == 1)
+        {
+            return gameCore.piece.PLAYER1;
+        }
+        else if(value == 2)
+        {
+            return gameCore.piece.PLAYER2;
+        }
+
+        return gameCore.piece.EMPTY;
+    }
+
+    public void newGame()
+    {
+        board.clear();
+        moveCount = 0;
+        currentPlayer = 1;
+        gameState = 0;
+    }
+
+    //Unlike gameCore there is no UI Tile to stop a move on a square
+    //that is already taken or a move after somebody has won, so we
+    //check here
+    public void makeMove(int x, int y)
+    {
+        if(gameState != 0)
+        {
+            throw new IllegalStateException("The game is already over");
+        }
+
+        long key = key(x, y);
+        if(board.get(key) != 0)
+        {
+            throw new IllegalArgumentException("Square (" + x + "," + y + ") is already taken");
+        }
+
+        board.put(key, (byte) currentPlayer);
+
+        if(moveCount == moves.length)
+        {
+            long[] bigger = new long[moves.length * 2];
+            System.arraycopy(moves, 0, bigger, 0, moves.length);
+            moves = bigger;
+        }
+        moves[moveCount++] = key;
+
+        if(checkWin(x, y, currentPlayer))
+        {
+            gameState = currentPlayer;
+        }
+        currentPlayer = currentPlayer == 1 ? 2 : 1;
+    }
+
+    //Takes back the last move. makeMove won't play after a win so the
+    //game state before any move was always 'no win'. Returns false
+    //if there was nothing to undo.
+    public boolean undoMove()
+    {
+        if(moveCount == 0)
+        {
+            return false;
+        }
+
+        board.remove(moves[--moveCount]);
+        currentPlayer = currentPlayer == 1 ? 2 : 1;
+        gameState = 0;
+        return true;
+    }
+
+    //Counts pieces in a row through (x,y) in each direction, going both
+    //ways from the square but never further than winLength - 1 squares.
+    //The board does end somewhere: x and y are ints, so a row stops at
+    //Integer.MIN_VALUE and Integer.MAX_VALUE instead of wrapping around
+    //to the other side.
+    boolean checkWin(int x, int y, int player)
+    {
+        for(int[] direction : DIRECTIONS)
+        {
+            int count = 1
+                    + countFrom(x, y, direction[0], direction[1], player)
+                    + countFrom(x, y, -direction[0], -direction[1], player);
+            if(count >= winLength)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private int countFrom(int x, int y, int dx, int dy, int player)
+    {
+        int count = 0;
+        for(int step=1; step<winLength; step++)
+        {
+            //Worked out in long so it can't overflow
+            long nextX = (long) x + (long) dx * step;
+            long nextY = (long) y + (long) dy * step;
+            if(nextX != (int) nextX || nextY != (int) nextY)
+            {
+                break;
+            }
+            if(board.get(key((int) nextX, (int) nextY)) != player)
+            {
+                break;
+            }
+            count++;
+        }
+
+        return count;
+    }
+
+    //Packs (x,y) into one long: x in the top 32 bits, y in the bottom 32
+    static long key(int x, int y)
+    {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,156 @@
+package Main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+//A learned policy is just the table of values the selfPlayTrainer
+//came up with. values[i] says how good it is to have just moved into
+//canonical position i (1 = you won, 0 = draw, -1 = you are going to
+//lose). To pick a move we try every empty square and take the one
+//that leads to the best value.
+public class learnedPolicy implements strategy
+{
+    private static final int MAGIC = 0x54545056;
+
+    //Magic and count, then one float for every position
+    private static final int FILE_SIZE = 8 + boardIndex.POSITIONS * 4;
+
+    private final float[] values;
+
+    public learnedPolicy(float[] values)
+    {
+        this.values = values;
+    }
+
+    //Where the UI looks for a policy if nobody says otherwise
+    public static Path defaultFile()
+    {
+        return Paths.get(System.getProperty("user.home"), ".tictactoe", "policy.bin");
+    }
+
+    @Override
+    public String name()
+    {
+        return "learned";
+    }
+
+    //The policy always plays its best move so it doesn't need 'random'
+    @Override
+    public int chooseMove(gameCore core, Random random)
+    {
+        return chooseMove(core);
+    }
+
+    //Returns the square (x*3 + y) the current player should move on,
+    //or -1 if the game is already over.
+    public int chooseMove(gameCore core)
+    {
+        if(core.getGameState() != 0)
+        {
+            return -1;
+        }
+
+        int index = boardIndex.of(core);
+        int player = core.getCurrentPlayer();
+        int bestCell = -1;
+        float bestValue = Float.NEGATIVE_INFINITY;
+
+        for(int cell=0; cell<9; cell++)
+        {
+            if(boardIndex.digit(index, cell) != 0)
+            {
+                continue;
+            }
+
+            float value = values[boardIndex.canonical(boardIndex.afterMove(index, cell, player))];
+            if(value > bestValue)
+            {
+                bestValue = value;
+                bestCell = cell;
+            }
+        }
+
+        return bestCell;
+    }
+
+    public float value(int canonicalIndex)
+    {
+        return values[canonicalIndex];
+    }
+
+    //The file is a small header followed by every value as a float. It is
+    //written with atomicFile so a crash never leaves half a policy behind.
+    public void save(Path file) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(FILE_SIZE);
+        buffer.putInt(MAGIC);
+        buffer.putInt(values.length);
+        for(float value : values)
+        {
+            buffer.putFloat(value);
+        }
+
+        buffer.flip();
+
+        atomicFile.write(file, buffer);
+    }
+
+    public static learnedPolicy load(Path file) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if(buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != boardIndex.POSITIONS)
+        {
+            throw new IOException("Not a policy file: " + file);
+        }
+
+        //A file cut short (or with junk on the end) would otherwise run
+        //out of floats halfway through the loop below
+        if(buffer.limit() != FILE_SIZE)
+        {
+            throw new IOException("Policy file is the wrong size: " + file);
+        }
+
+        float[] values = new float[boardIndex.POSITIONS];
+        for(int i=0; i<values.length; i++)
+        {
+            values[i] = buffer.getFloat();
+        }
+
+        return new learnedPolicy(values);
+    }
+
+    //Load the policy from 'file', or if there isn't one yet train a new
+    //one (this only takes a moment on a 3x3 board) and try to save it
+    //so next time we can skip the training.
+    public static learnedPolicy loadOrTrain(Path file)
+    {
+        if(Files.exists(file))
+        {
+            try
+            {
+                return load(file);
+            }
+            catch(IOException e)
+            {
+                System.err.println("Could not load policy, training a new one: " + e);
+            }
+        }
+
+        learnedPolicy policy = new selfPlayTrainer(Runtime.getRuntime().availableProcessors())
+                .train(selfPlayTrainer.DEFAULT_GAMES, 1);
+        try
+        {
+            policy.save(file);
+        }
+        catch(IOException e)
+        {
+            System.err.println("Could not save policy: " + e);
+        }
+
+        return policy;
+    }
+}
@@ -0,0 +1,151 @@
+package Main;
+
+import java.util.Arrays;
+
+//A hash map from a long key to a small number (a piece), written with
+//plain arrays instead of java.util.HashMap. HashMap would turn every
+//key into a Long object and every entry into another object, which
+//adds up fast when a board has thousands of pieces on it.
+//
+//This is an 'open addressing' hash table: every key has a home slot
+//worked out from its hash, and if that slot is taken we simply try the
+//next one along ('linear probing'). A value of 0 marks an empty slot,
+//so 0 can't be stored as a value. The table doubles in size whenever
+//it gets half full so the probes stay short.
+public class longPieceMap
+{
+    private long[] keys;
+    private byte[] values;
+    private int size;
+    private int mask;
+
+    public longPieceMap()
+    {
+        this(16);
+    }
+
+    //'capacity' must be a power of 2
+    public longPieceMap(int capacity)
+    {
+        keys = new long[capacity];
+        values = new byte[capacity];
+        mask = capacity - 1;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    //Returns the value for 'key' or 0 if there isn't one
+    public byte get(long key)
+    {
+        int slot = slot(key);
+        while(values[slot] != 0)
+        {
+            if(keys[slot] == key)
+            {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return 0;
+    }
+
+    //Stores 'value' (which must not be 0) for 'key'
+    public void put(long key, byte value)
+    {
+        if(2 * (size + 1) > keys.length)
+        {
+            grow();
+        }
+
+        int slot = slot(key);
+        while(values[slot] != 0)
+        {
+            if(keys[slot] == key)
+            {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+
+    //Removes 'key' if it is there. We can't just empty the slot because
+    //a key stored further along might have probed past it, and a lookup
+    //for that key would now stop early at the hole. So after emptying a
+    //slot, every key after it is moved back into the hole if its home
+    //slot allows it ('backward shift deletion').
+    public void remove(long key)
+    {
+        int slot = slot(key);
+        while(values[slot] != 0 && keys[slot] != key)
+        {
+            slot = (slot + 1) & mask;
+        }
+        if(values[slot] == 0)
+        {
+            return;
+        }
+
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while(values[next] != 0)
+        {
+            int home = slot(keys[next]);
+
+            //Move the key back if its home is not between the hole and
+            //where it is now (going around the end of the array)
+            if(((next - home) & mask) >= ((next - hole) & mask))
+            {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+
+        values[hole] = 0;
+        size--;
+    }
+
+    //Empties the map but keeps the arrays so they can be reused
+    public void clear()
+    {
+        Arrays.fill(values, (byte) 0);
+        size = 0;
+    }
+
+    private void grow()
+    {
+        long[] oldKeys = keys;
+        byte[] oldValues = values;
+
+        keys = new long[oldKeys.length * 2];
+        values = new byte[oldValues.length * 2];
+        mask = keys.length - 1;
+        size = 0;
+
+        for(int i=0; i<oldKeys.length; i++)
+        {
+            if(oldValues[i] != 0)
+            {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    //Mixes the bits of the key so that nearby squares (whose keys only
+    //differ in a few low bits) end up spread all over the table
+    private int slot(long key)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
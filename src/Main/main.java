@@ -3,6 +3,9 @@ package Main;
 import javafx.application.Application;
 import javafx.stage.Stage;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+
 //The main class is responsible for launching
 //the application. At a large scale we create
 //a gameCore instance and a UI instance and start
@@ -12,22 +15,64 @@ public class main extends Application
 {
     public static void main(String[] args)
     {
+        //Start the stopwatch that measures how long it takes until
+        //the board is on screen (see the startupTimer class)
+        startupTimer.begin();
         launch(args);
     }
 
     @Override
     public void start(Stage window)
     {
-        
+        startupTimer.mark("javafx ready");
         UI gui = new UI();
-        gameCore core = new gameCore();
+
+        //Games are saved in a '.tictactoe' folder in the user's home
+        //directory so closing the window (or a crash) doesn't lose the
+        //match in progress. If the folder can't be used we still let
+        //people play, the game just won't be saved.
+        gameStore store;
+        try
+        {
+            store = new gameStore(Paths.get(System.getProperty("user.home"), ".tictactoe"));
+        }
+        catch(IOException e)
+        {
+            System.err.println("Could not open saved games, continuing without saving: " + e);
+            store = null;
+        }
+        startupTimer.mark("games loaded");
 
         //We start the application by calling the
         //gui and giving it the gameCore and stage
         //instance. After that, the gui handles
         //everything
-        gui.createUI(window,core);
+        if(store != null)
+        {
+            gui.createUI(window, store.getSession(0), store, 0);
+
+            //When the window goes away commit the last moves and
+            //write a final snapshot
+            gameStore openStore = store;
+            window.setOnHidden(e -> closeStore(openStore));
+        }
+        else
+        {
+            gui.createUI(window, new gameCore());
+        }
 
 
     }
+
+    private static void closeStore(gameStore store)
+    {
+        try
+        {
+            store.close();
+        }
+        catch(IOException e)
+        {
+            System.err.println("Could not save the game: " + e);
+        }
+    }
 }
@@ -0,0 +1,47 @@
+package Main;
+
+//Works out how good every empty square is for the player whose turn
+//it is, so the UI can colour the board as a hint. Each square gets
+//the searchStrategy score of the position after moving there:
+//positive means that move wins (bigger = sooner), 0 means a draw with
+//best play and negative means the other player can force a win.
+//
+//The scores come from searchStrategy's table, which remembers every
+//canonical position it has ever scored. Going back to a position, or
+//reaching one that is just a rotated or mirrored copy of an old one,
+//is only a few table lookups.
+public class moveHints
+{
+    //Used for squares that already have a piece on them
+    public static final int OCCUPIED = Integer.MIN_VALUE;
+
+    //Scores for all 9 squares (x*3 + y). 'core' is used to try the
+    //moves so pass in a copy if someone else might be using it.
+    public static int[] evaluate(gameCore core)
+    {
+        int[] scores = new int[9];
+
+        for(int cell=0; cell<9; cell++)
+        {
+            if(core.getGameState() != 0 || core.getPiece(cell / 3, cell % 3) != gameCore.piece.EMPTY)
+            {
+                scores[cell] = OCCUPIED;
+                continue;
+            }
+
+            core.makeMove(cell / 3, cell % 3);
+            scores[cell] = -searchStrategy.score(core);
+            core.undoMove();
+        }
+
+        return scores;
+    }
+
+    //How many moves (counting both players, and including this one)
+    //until the game is decided, for a winning or losing score. 'pieces'
+    //is the number of pieces on the board before the move.
+    public static int movesUntilEnd(int score, int pieces)
+    {
+        return searchStrategy.WIN - Math.abs(score) - pieces;
+    }
+}
@@ -0,0 +1,226 @@
+package Main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+//An opening book is a list of the best move for every position near
+//the start of the game, worked out ahead of time so a player can look
+//the answer up instead of searching for it again in every game.
+//
+//The book is a file of fixed size entries sorted by canonical position
+//(see boardIndex), so one entry covers a position and all of its
+//rotations and mirror images:
+//
+//  header: magic, board size, number of plies covered, number of entries
+//  entry:  canonical position (int), best move on the canonical board
+//          (byte), searchStrategy score + 64 (byte), 2 unused bytes
+//
+//The file is 'memory mapped', which means the operating system makes
+//the file look like an array in memory and only reads the parts we
+//actually touch. Looking up a position is a binary search straight
+//over that memory, so it never allocates anything. Every program that
+//maps the same book shares the same copy in memory.
+//
+//Only the 3x3 board has a book. infiniteGameCore positions can't be
+//numbered with boardIndex, so there is nothing to key its entries by.
+public class openingBook
+{
+    private static final int MAGIC = 0x5454424B;
+    private static final int HEADER_SIZE = 16;
+    private static final int ENTRY_SIZE = 8;
+    private static final int BOARD_SIZE = 3;
+
+    public static final int DEFAULT_PLIES = 6;
+
+    private final MappedByteBuffer entries;
+    private final int count;
+    private final int plies;
+
+    private openingBook(MappedByteBuffer entries, int count, int plies)
+    {
+        this.entries = entries;
+        this.count = count;
+        this.plies = plies;
+    }
+
+    //Where the book is kept if nobody says otherwise
+    public static Path defaultFile()
+    {
+        return Paths.get(System.getProperty("user.home"), ".tictactoe", "opening.book");
+    }
+
+    public static openingBook open(Path file) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            //The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if(buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != BOARD_SIZE)
+            {
+                throw new IOException("Not an opening book: " + file);
+            }
+
+            int plies = buffer.getInt(8);
+            int count = buffer.getInt(12);
+            if(buffer.limit() != HEADER_SIZE + count * ENTRY_SIZE)
+            {
+                throw new IOException("Opening book is the wrong size: " + file);
+            }
+
+            return new openingBook(buffer, count, plies);
+        }
+    }
+
+    public int size()
+    {
+        return count;
+    }
+
+    public int getPlies()
+    {
+        return plies;
+    }
+
+    //Returns the book move (x*3 + y) for the current position, or -1
+    //if the position isn't in the book
+    public int lookup(gameCore core)
+    {
+        int index = boardIndex.of(core);
+        int key = boardIndex.canonical(index);
+
+        int low = 0;
+        int high = count - 1;
+        while(low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            int entry = HEADER_SIZE + middle * ENTRY_SIZE;
+            int found = entries.getInt(entry);
+
+            if(found < key)
+            {
+                low = middle + 1;
+            }
+            else if(found > key)
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                //The move is stored for the canonical board, turn it
+                //back into a square on the board we actually have
+                return boardIndex.toBoard(index, entries.get(entry + 4));
+            }
+        }
+
+        return -1;
+    }
+
+    //Works out the best move for every position that can come up in
+    //the first 'plies' moves and writes the book to 'file'. Returns
+    //the number of entries written.
+    public static int build(Path file, int plies) throws IOException
+    {
+        //Walk every game up to 'plies' moves long and mark each canonical
+        //position we meet. Walking the canonical positions in order
+        //afterwards gives us the entries already sorted.
+        boolean[] seen = new boolean[boardIndex.POSITIONS];
+        byte[] moves = new byte[boardIndex.POSITIONS];
+        byte[] scores = new byte[boardIndex.POSITIONS];
+        collect(new gameCore(), plies, seen, moves, scores);
+
+        int count = 0;
+        for(boolean s : seen)
+        {
+            if(s)
+            {
+                count++;
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + count * ENTRY_SIZE);
+        buffer.putInt(MAGIC);
+        buffer.putInt(BOARD_SIZE);
+        buffer.putInt(plies);
+        buffer.putInt(count);
+        for(int key=0; key<boardIndex.POSITIONS; key++)
+        {
+            if(seen[key])
+            {
+                buffer.putInt(key);
+                buffer.put(moves[key]);
+                buffer.put(scores[key]);
+                buffer.putShort((short) 0);
+            }
+        }
+        buffer.flip();
+
+        atomicFile.write(file, buffer);
+
+        return count;
+    }
+
+    //Adds the position in 'core' (if the game isn't over) and then every
+    //position reachable from it in 'pliesLeft' more moves
+    private static void collect(gameCore core, int pliesLeft, boolean[] seen, byte[] moves, byte[] scores)
+    {
+        if(pliesLeft == 0 || core.getGameState() != 0)
+        {
+            return;
+        }
+
+        int index = boardIndex.of(core);
+        int key = boardIndex.canonical(index);
+        if(seen[key])
+        {
+            return;
+        }
+        seen[key] = true;
+
+        //Pick the best move with searchStrategy's scores. When moves
+        //are equally good we take the lowest square on the canonical
+        //board so the book is the same every time it is built.
+        int[] hints = moveHints.evaluate(core);
+        int bestCell = -1;
+        for(int cell=0; cell<9; cell++)
+        {
+            if(hints[cell] == moveHints.OCCUPIED)
+            {
+                continue;
+            }
+            if(bestCell < 0 || hints[cell] > hints[bestCell]
+                    || hints[cell] == hints[bestCell]
+                    && boardIndex.toCanonical(index, cell) < boardIndex.toCanonical(index, bestCell))
+            {
+                bestCell = cell;
+            }
+        }
+        moves[key] = (byte) boardIndex.toCanonical(index, bestCell);
+        scores[key] = (byte) (hints[bestCell] + 64);
+
+        for(int cell=0; cell<9; cell++)
+        {
+            if(core.getPiece(cell / 3, cell % 3) == gameCore.piece.EMPTY)
+            {
+                core.makeMove(cell / 3, cell % 3);
+                collect(core, pliesLeft - 1, seen, moves, scores);
+                core.undoMove();
+            }
+        }
+    }
+
+    //Build a book from the command line:
+    //  java Main.openingBook [plies] [output file]
+    public static void main(String[] args) throws IOException
+    {
+        int plies = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PLIES;
+        Path output = args.length > 1 ? Paths.get(args[1]) : defaultFile();
+
+        int count = build(output, plies);
+        System.out.println("Wrote " + count + " positions covering " + plies + " plies to " + output);
+    }
+}
@@ -0,0 +1,30 @@
+package Main;
+
+import java.util.Random;
+
+//The simplest possible player: pick any empty square
+public class randomStrategy implements strategy
+{
+    @Override
+    public String name()
+    {
+        return "random";
+    }
+
+    @Override
+    public int chooseMove(gameCore core, Random random)
+    {
+        int[] empty = new int[9];
+        int count = 0;
+
+        for(int cell=0; cell<9; cell++)
+        {
+            if(core.getPiece(cell / 3, cell % 3) == gameCore.piece.EMPTY)
+            {
+                empty[count++] = cell;
+            }
+        }
+
+        return empty[random.nextInt(count)];
+    }
+}
@@ -0,0 +1,123 @@
+package Main;
+
+import java.util.Random;
+
+//A perfect player that looks at every possible way the game can go.
+//This is the minimax algorithm written as 'negamax': the score of a
+//position for the player to move is the best of the negative scores
+//of the positions their moves lead to (what is good for one player
+//is exactly as bad for the other). Wins score higher the sooner they
+//happen so the search goes for a quick win and delays a loss.
+//
+//There are only a few thousand different positions once rotations
+//and mirror images are counted as the same (see boardIndex), so every
+//score is remembered in a 'transposition table' the first time it is
+//worked out. After that looking up any position is instant. Scores
+//never change, so threads can share the table without locking: at
+//worst two threads work out the same score at the same time.
+//
+//Instead of copying the board for every move it tries, the search
+//makes the move, scores it and then takes it back with undoMove().
+//Only one copy is made per call so the caller's own undo history
+//is left alone.
+public class searchStrategy implements strategy
+{
+    static final int WIN = 10;
+
+    //Score + 64 for each canonical position, 0 = not worked out yet
+    private static final byte[] SCORES = new byte[boardIndex.POSITIONS];
+
+    @Override
+    public String name()
+    {
+        return "search";
+    }
+
+    @Override
+    public int chooseMove(gameCore core, Random random)
+    {
+        gameCore board = new gameCore(core);
+        int bestCell = -1;
+        int bestScore = Integer.MIN_VALUE;
+        int ties = 0;
+
+        for(int cell=0; cell<9; cell++)
+        {
+            if(core.getPiece(cell / 3, cell % 3) != gameCore.piece.EMPTY)
+            {
+                continue;
+            }
+
+            board.makeMove(cell / 3, cell % 3);
+            int score = -score(board);
+            board.undoMove();
+
+            //Several moves can be equally good, pick one of them at random
+            if(score > bestScore)
+            {
+                bestScore = score;
+                bestCell = cell;
+                ties = 1;
+            }
+            else if(score == bestScore && random.nextInt(++ties) == 0)
+            {
+                bestCell = cell;
+            }
+        }
+
+        return bestCell;
+    }
+
+    //Score of 'core' for the player whose turn it is. A win is worth
+    //WIN minus the number of pieces on the board when it happens, a loss
+    //the negative of that and a tie 0. 'core' is changed while the
+    //search runs but is back the way it was when this returns.
+    static int score(gameCore core)
+    {
+        int index = boardIndex.of(core);
+        int canonical = boardIndex.canonical(index);
+        if(SCORES[canonical] != 0)
+        {
+            return SCORES[canonical] - 64;
+        }
+
+        int pieces = 0;
+        for(int cell=0; cell<9; cell++)
+        {
+            if(boardIndex.digit(index, cell) != 0)
+            {
+                pieces++;
+            }
+        }
+
+        int best;
+        int state = core.getGameState();
+        if(state == -1)
+        {
+            best = 0;
+        }
+        else if(state != 0)
+        {
+            //The player who just moved won, so the player to move lost
+            best = -(WIN - pieces);
+        }
+        else
+        {
+            best = -WIN - 1;
+            for(int cell=0; cell<9; cell++)
+            {
+                if(boardIndex.digit(index, cell) != 0)
+                {
+                    continue;
+                }
+
+                core.makeMove(cell / 3, cell % 3);
+                best = Math.max(best, -score(core));
+                core.undoMove();
+            }
+        }
+
+        SCORES[canonical] = (byte) (best + 64);
+        return best;
+    }
+}
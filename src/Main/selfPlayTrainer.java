@@ -0,0 +1,209 @@
+package Main;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+//This class teaches the computer to play by letting it play against
+//itself over and over again (reinforcement learning). It uses a method
+//called temporal difference learning, TD(0):
+//
+//  - Every position you can move into has a value in a table, starting at 0
+//  - On your turn you pick the move leading to the best value (but now and
+//    then you pick a random move so you keep discovering new things)
+//  - After the game ends, the final position gets its real value (1 for a
+//    win, 0 for a tie). Before that, whenever the other player answers, your
+//    last position is nudged towards the negative of their value, because
+//    whatever is good for them is bad for you.
+//
+//The table is indexed by canonical position (see boardIndex) so a move and
+//all of its rotations and mirror images are learned at the same time.
+//
+//To use every core, training happens in rounds. Each round is split into a
+//fixed number of 'shards'. Every shard gets its own copy of the table and
+//its own random numbers and plays a batch of games, and then all of the
+//copies are averaged back together. The shards are spread over however
+//many threads there are, but the rounds, the shards and their seeds never
+//depend on the thread count, so every computer trains exactly the same
+//policy, just faster or slower.
+public class selfPlayTrainer
+{
+    public static final int DEFAULT_GAMES = 200000;
+
+    private static final int SHARDS = 8;
+    private static final int GAMES_PER_SHARD = 1000;
+    private static final float LEARNING_RATE = 0.2f;
+    private static final double START_EXPLORATION = 0.3;
+    private static final double END_EXPLORATION = 0.05;
+
+    private final int threads;
+
+    public selfPlayTrainer(int threads)
+    {
+        this.threads = Math.max(1, threads);
+    }
+
+    //Play 'games' games of self-play and return what was learned. The
+    //same seed always gives the same policy, whatever the thread count.
+    public learnedPolicy train(int games, long seed)
+    {
+        float[] values = new float[boardIndex.POSITIONS];
+        int perRound = GAMES_PER_SHARD * SHARDS;
+        int rounds = Math.max(1, (games + perRound - 1) / perRound);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try
+        {
+            for(int round=0; round<rounds; round++)
+            {
+                double exploration = START_EXPLORATION
+                        + (END_EXPLORATION - START_EXPLORATION) * round / Math.max(1, rounds - 1);
+
+                List<Future<float[]>> results = new ArrayList<>();
+                for(int shard=0; shard<SHARDS; shard++)
+                {
+                    long shardSeed = seed * 1000003L + round * 7919L + shard;
+                    results.add(pool.submit(worker(values.clone(), shardSeed, exploration)));
+                }
+
+                //Reduce: the new table is the average of every shard's table.
+                //The shards are always added in the same order so the float
+                //rounding comes out the same every time.
+                float[] sum = new float[values.length];
+                for(Future<float[]> result : results)
+                {
+                    float[] local = result.get();
+                    for(int i=0; i<sum.length; i++)
+                    {
+                        sum[i] += local[i];
+                    }
+                }
+                for(int i=0; i<sum.length; i++)
+                {
+                    values[i] = sum[i] / SHARDS;
+                }
+            }
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Training was interrupted", e);
+        }
+        catch(ExecutionException e)
+        {
+            throw new IllegalStateException("Training failed", e.getCause());
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+
+        return new learnedPolicy(values);
+    }
+
+    private static Callable<float[]> worker(float[] local, long seed, double exploration)
+    {
+        return () ->
+        {
+            Random random = new Random(seed);
+            gameCore core = new gameCore();
+            for(int g=0; g<GAMES_PER_SHARD; g++)
+            {
+                playGame(core, local, random, exploration);
+            }
+            return local;
+        };
+    }
+
+    //One game of self-play, updating 'values' as it goes
+    private static void playGame(gameCore core, float[] values, Random random, double exploration)
+    {
+        core.newGame();
+        int index = 0;
+
+        //The last canonical position each player moved into (-1 = none yet)
+        int[] lastPosition = {-1, -1, -1};
+        int[] empty = new int[9];
+
+        while(core.getGameState() == 0)
+        {
+            int player = core.getCurrentPlayer();
+
+            int emptyCount = 0;
+            for(int cell=0; cell<9; cell++)
+            {
+                if(boardIndex.digit(index, cell) == 0)
+                {
+                    empty[emptyCount++] = cell;
+                }
+            }
+
+            int cell;
+            boolean explored = random.nextDouble() < exploration;
+            if(explored)
+            {
+                cell = empty[random.nextInt(emptyCount)];
+            }
+            else
+            {
+                cell = empty[0];
+                float best = Float.NEGATIVE_INFINITY;
+                for(int i=0; i<emptyCount; i++)
+                {
+                    float value = values[boardIndex.canonical(boardIndex.afterMove(index, empty[i], player))];
+                    if(value > best)
+                    {
+                        best = value;
+                        cell = empty[i];
+                    }
+                }
+            }
+
+            core.makeMove(cell / 3, cell % 3);
+            index = boardIndex.afterMove(index, cell, player);
+            int position = boardIndex.canonical(index);
+            int opponentPosition = lastPosition[3 - player];
+
+            int state = core.getGameState();
+            if(state != 0)
+            {
+                float reward = state == player ? 1 : 0;
+                values[position] = reward;
+                if(opponentPosition >= 0)
+                {
+                    values[opponentPosition] += LEARNING_RATE * (-reward - values[opponentPosition]);
+                }
+            }
+            else if(opponentPosition >= 0 && !explored)
+            {
+                values[opponentPosition] += LEARNING_RATE * (-values[position] - values[opponentPosition]);
+            }
+
+            lastPosition[player] = position;
+        }
+    }
+
+    //Train from the command line and export the policy for the UI:
+    //  java Main.selfPlayTrainer [games] [output file]
+    public static void main(String[] args) throws Exception
+    {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_GAMES;
+        Path output = args.length > 1 ? Paths.get(args[1]) : learnedPolicy.defaultFile();
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        long start = System.nanoTime();
+        learnedPolicy policy = new selfPlayTrainer(threads).train(games, 1);
+        long elapsed = (System.nanoTime() - start) / 1000000;
+
+        policy.save(output);
+        System.out.println("Trained " + games + " games on " + threads + " threads in "
+                + elapsed + " ms, saved to " + output);
+    }
+}
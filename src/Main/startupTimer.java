@@ -0,0 +1,60 @@
+package Main;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+//A tiny stopwatch for measuring how long the program takes to start.
+//main() starts it, and the other classes call mark() when they reach
+//an interesting point (the window is built, the first frame is drawn...)
+//Nothing is printed unless the program is started with
+//  java -Dtictactoe.startupTrace=true ...
+//so normal players never see it.
+public class startupTimer
+{
+    private static final boolean ENABLED = Boolean.getBoolean("tictactoe.startupTrace");
+
+    private static long start = System.nanoTime();
+    private static final List<String> names = new ArrayList<>();
+    private static final List<Long> times = new ArrayList<>();
+
+    //Called first thing in main() so every mark is measured from there
+    public static synchronized void begin()
+    {
+        start = System.nanoTime();
+        names.clear();
+        times.clear();
+        mark("main");
+    }
+
+    public static synchronized void mark(String name)
+    {
+        names.add(name);
+        times.add(System.nanoTime());
+    }
+
+    //Prints every mark as milliseconds since main() started. When
+    //the operating system knows when the process started we also
+    //show how long the JVM took to get to main().
+    public static synchronized void report()
+    {
+        if(!ENABLED)
+        {
+            return;
+        }
+
+        Optional<Instant> processStart = ProcessHandle.current().info().startInstant();
+        if(processStart.isPresent())
+        {
+            long sinceProcess = Instant.now().toEpochMilli() - processStart.get().toEpochMilli();
+            long sinceMain = (System.nanoTime() - start) / 1000000;
+            System.err.printf("startup: %-14s %6d ms%n", "jvm", sinceProcess - sinceMain);
+        }
+
+        for(int i=0; i<names.size(); i++)
+        {
+            System.err.printf("startup: %-14s %6.1f ms%n", names.get(i), (times.get(i) - start) / 1e6);
+        }
+    }
+}
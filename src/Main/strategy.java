@@ -0,0 +1,20 @@
+package Main;
+
+import java.util.Random;
+
+//An interface is a list of methods a class promises to have without
+//saying how they work. Anything that can play Tic Tac Toe (a random
+//player, a search, a learned policy...) implements this interface so
+//the tournament can treat all of them the same way.
+public interface strategy
+{
+    //A short name to show in results
+    String name();
+
+    //Return the square (x*3 + y) the current player of 'core' should
+    //move on. 'core' must not be changed, copy it to try out moves.
+    //Any randomness has to come from 'random' so games can be replayed
+    //from their seed. Implementations are shared between threads so
+    //they must not keep any state between calls.
+    int chooseMove(gameCore core, Random random);
+}
@@ -0,0 +1,319 @@
+package Main;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+//Plays every strategy against every other strategy (a 'round robin')
+//and turns the results into Elo ratings, the rating system used in
+//chess. Two players 400 points apart are expected to score about
+//10 to 1 against each other.
+//
+//The games are spread over a ForkJoinPool. Each pairing is split in
+//half again and again until the pieces are small, and idle threads
+//'steal' pieces from busy ones, so every core stays busy even though
+//some strategies are much slower than others. Every game gets its own
+//seed made from the tournament seed, the pairing and the game number,
+//so the same tournament always gives the same results no matter how
+//the games end up spread over the threads.
+public class tournament
+{
+    //Pieces of a pairing smaller than this are played by a single thread
+    private static final int GAMES_PER_TASK = 64;
+
+    //Ratings are computed as if every pair had also drawn this many
+    //extra games. Without it a player who lost every single game would
+    //have a rating of minus infinity.
+    private static final double PRIOR_DRAWS = 1;
+
+    //The ratings of all the players average out to this
+    private static final double BASE_RATING = 1500;
+
+    private final List<strategy> players;
+    private final int gamesPerPairing;
+    private final long seed;
+
+    //wins[i][j] = games player i won against player j
+    //draws[i][j] = games player i drew with player j (always the same
+    //as draws[j][i], every draw is counted for both players)
+    private int[][] wins;
+    private int[][] draws;
+
+    //Everything worth printing about a single player
+    public static class standing
+    {
+        public String name;
+        public int wins, draws, losses;
+        public double rating;
+        public double low, high;
+
+        @Override
+        public String toString()
+        {
+            return String.format("%-12s %7.1f  [%7.1f, %7.1f]  +%d =%d -%d",
+                    name, rating, low, high, wins, draws, losses);
+        }
+    }
+
+    public tournament(List<strategy> players, int gamesPerPairing, long seed)
+    {
+        this.players = players;
+        this.gamesPerPairing = gamesPerPairing;
+        this.seed = seed;
+    }
+
+    //Play every game and return the players sorted best first
+    public List<standing> run(ForkJoinPool pool)
+    {
+        int n = players.size();
+        wins = new int[n][n];
+        draws = new int[n][n];
+
+        List<match> matches = new ArrayList<>();
+        for(int i=0; i<n; i++)
+        {
+            for(int j=i+1; j<n; j++)
+            {
+                matches.add(new match(i, j, 0, gamesPerPairing));
+            }
+        }
+
+        pool.invoke(new RecursiveTask<Void>()
+        {
+            @Override
+            protected Void compute()
+            {
+                invokeAll(matches);
+                return null;
+            }
+        });
+
+        for(match m : matches)
+        {
+            int[] result = m.join();
+            wins[m.first][m.second] += result[0];
+            draws[m.first][m.second] += result[1];
+            draws[m.second][m.first] += result[1];
+            wins[m.second][m.first] += result[2];
+        }
+
+        return ratings();
+    }
+
+    //A range of games between player 'first' and player 'second'.
+    //Returns {wins for first, draws, wins for second}.
+    private class match extends RecursiveTask<int[]>
+    {
+        private static final long serialVersionUID = 1L;
+
+        final int first, second, from, to;
+
+        match(int first, int second, int from, int to)
+        {
+            this.first = first;
+            this.second = second;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected int[] compute()
+        {
+            if(to - from > GAMES_PER_TASK)
+            {
+                int middle = (from + to) >>> 1;
+                match left = new match(first, second, from, middle);
+                match right = new match(first, second, middle, to);
+                left.fork();
+                int[] result = right.compute();
+                int[] other = left.join();
+                for(int k=0; k<3; k++)
+                {
+                    result[k] += other[k];
+                }
+                return result;
+            }
+
+            int[] result = new int[3];
+            gameCore core = new gameCore();
+            for(int game=from; game<to; game++)
+            {
+                //Take turns going first: even games 'first' is player 1
+                boolean firstStarts = game % 2 == 0;
+                Random random = new Random(gameSeed(first, second, game));
+                int winner = playGame(core, firstStarts ? players.get(first) : players.get(second),
+                        firstStarts ? players.get(second) : players.get(first), random);
+
+                if(winner == 0)
+                {
+                    result[1]++;
+                }
+                else if((winner == 1) == firstStarts)
+                {
+                    result[0]++;
+                }
+                else
+                {
+                    result[2]++;
+                }
+            }
+            return result;
+        }
+    }
+
+    //Plays one game and returns 1 or 2 for the winning player, 0 for a tie
+    static int playGame(gameCore core, strategy player1, strategy player2, Random random)
+    {
+        core.newGame();
+        while(core.getGameState() == 0)
+        {
+            strategy mover = core.getCurrentPlayer() == 1 ? player1 : player2;
+            int cell = mover.chooseMove(core, random);
+            core.makeMove(cell / 3, cell % 3);
+        }
+
+        return core.getGameState() == -1 ? 0 : core.getGameState();
+    }
+
+    //Mixes the numbers together (the 'SplitMix64' mixer) so that seeds
+    //for neighbouring games look nothing alike
+    private long gameSeed(int first, int second, int game)
+    {
+        long z = seed + 0x9E3779B97F4A7C15L * (((long) first << 42) ^ ((long) second << 21) ^ (game + 1));
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    //Fits the Bradley-Terry model, which is what Elo ratings are based
+    //on: each player has a strength 'gamma' and player i beats player j
+    //with probability gamma_i / (gamma_i + gamma_j). A draw counts as half
+    //a win for both. The strengths are found with the simple 'MM' update
+    //and the confidence interval comes from how sharply the likelihood
+    //curves around the answer (the Fisher information).
+    private List<standing> ratings()
+    {
+        int n = players.size();
+        double[][] games = new double[n][n];
+        double[] score = new double[n];
+
+        for(int i=0; i<n; i++)
+        {
+            for(int j=0; j<n; j++)
+            {
+                if(i == j)
+                {
+                    continue;
+                }
+                games[i][j] = wins[i][j] + wins[j][i] + draws[i][j] + PRIOR_DRAWS;
+                score[i] += wins[i][j] + 0.5 * (draws[i][j] + PRIOR_DRAWS);
+            }
+        }
+
+        double[] gamma = new double[n];
+        Arrays.fill(gamma, 1);
+        for(int iteration=0; iteration<10000; iteration++)
+        {
+            double change = 0;
+            for(int i=0; i<n; i++)
+            {
+                double denominator = 0;
+                for(int j=0; j<n; j++)
+                {
+                    if(i != j)
+                    {
+                        denominator += games[i][j] / (gamma[i] + gamma[j]);
+                    }
+                }
+
+                double updated = score[i] / denominator;
+                change = Math.max(change, Math.abs(Math.log(updated / gamma[i])));
+                gamma[i] = updated;
+            }
+
+            if(change < 1e-10)
+            {
+                break;
+            }
+        }
+
+        //Elo points per unit of natural log strength
+        double scale = 400 / Math.log(10);
+        double meanLog = 0;
+        for(double g : gamma)
+        {
+            meanLog += Math.log(g) / n;
+        }
+
+        List<standing> standings = new ArrayList<>();
+        for(int i=0; i<n; i++)
+        {
+            double information = 0;
+            standing s = new standing();
+            s.name = players.get(i).name();
+
+            for(int j=0; j<n; j++)
+            {
+                if(i == j)
+                {
+                    continue;
+                }
+                double p = gamma[i] / (gamma[i] + gamma[j]);
+                information += games[i][j] * p * (1 - p);
+                s.wins += wins[i][j];
+                s.draws += draws[i][j];
+                s.losses += wins[j][i];
+            }
+
+            //95% of the time the true rating is within 1.96 standard errors
+            double error = 1.96 * scale / Math.sqrt(information);
+            s.rating = BASE_RATING + scale * (Math.log(gamma[i]) - meanLog);
+            s.low = s.rating - error;
+            s.high = s.rating + error;
+            standings.add(s);
+        }
+
+        standings.sort((a, b) -> Double.compare(b.rating, a.rating));
+        return standings;
+    }
+
+    //Run a tournament between all of the built in strategies:
+    //  java Main.tournament [games per pairing] [seed]
+    public static void main(String[] args) throws IOException
+    {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+
+        List<strategy> players = new ArrayList<>();
+        players.add(new randomStrategy());
+        players.add(new heuristicStrategy());
+        players.add(new searchStrategy());
+        players.add(learnedPolicy.loadOrTrain(learnedPolicy.defaultFile()));
+
+        //The search again, but playing the opening from the book. The
+        //book is built the first time if there isn't one yet.
+        Path bookFile = openingBook.defaultFile();
+        if(!Files.exists(bookFile))
+        {
+            openingBook.build(bookFile, openingBook.DEFAULT_PLIES);
+        }
+        players.add(new bookStrategy(openingBook.open(bookFile), new searchStrategy()));
+
+        long start = System.nanoTime();
+        List<standing> standings = new tournament(players, games, seed).run(ForkJoinPool.commonPool());
+        long elapsed = (System.nanoTime() - start) / 1000000;
+
+        System.out.println(games + " games per pairing in " + elapsed + " ms");
+        System.out.println("player        rating   95% interval         record");
+        for(standing s : standings)
+        {
+            System.out.println(s);
+        }
+    }
+}